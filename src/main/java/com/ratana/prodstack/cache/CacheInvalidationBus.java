@@ -0,0 +1,256 @@
+package com.ratana.prodstack.cache;
+
+import com.ratana.prodstack.cluster.ClusterNotificationHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cluster-wide invalidation of in-process caches over PostgreSQL LISTEN/NOTIFY.
+ * <p>
+ * Keys invalidated inside a transaction are coalesced and sent as one
+ * {@code NOTIFY} just before commit; PostgreSQL only delivers it if the
+ * transaction commits. Local caches are evicted after commit. Other nodes
+ * receive it through {@link com.ratana.prodstack.cluster.ClusterNotificationListener}.
+ * <p>
+ * Each node numbers its messages. A receiver that sees a gap it cannot fill
+ * within {@code gap-timeout}, or that has to reconnect, flushes all caches
+ * because it can no longer tell what it missed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidationBus implements ClusterNotificationHandler {
+
+    /** PostgreSQL rejects NOTIFY payloads of 8000 bytes or more. */
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+
+    /** Key meaning "every entry of this cache". */
+    private static final String ALL_KEYS = "*";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<CacheInvalidationListener> listeners;
+
+    @Value("${app.cache.invalidation.enabled}")
+    private boolean enabled;
+
+    @Value("${app.cache.invalidation.channel}")
+    private String channel;
+
+    @Value("${app.cache.invalidation.gap-timeout}")
+    private long gapTimeout;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, NodeState> nodes = new HashMap<>();
+
+    @Override
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void onListening() {
+        if (enabled) {
+            // Anything sent while we were not listening is lost.
+            nodes.clear();
+            evictAllLocally();
+        }
+    }
+
+    @Override
+    public void onNotifications(List<String> payloads) {
+        if (enabled) {
+            receive(payloads);
+        }
+    }
+
+    @Override
+    public void onPoll() {
+        checkGaps();
+    }
+
+    /**
+     * Invalidates {@code key} in {@code cacheName} on every node. Inside a
+     * transaction this takes effect on commit and is dropped on rollback.
+     */
+    public void invalidate(String cacheName, Object key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<String, Set<String>> entries = Map.of(cacheName, Set.of(String.valueOf(key)));
+            send(entries);
+            evictLocally(entries);
+            return;
+        }
+
+        PendingInvalidations pending = (PendingInvalidations)
+                TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingInvalidations();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.entries.computeIfAbsent(cacheName, name -> new HashSet<>()).add(String.valueOf(key));
+    }
+
+    private void send(Map<String, Set<String>> entries) {
+        if (!enabled) {
+            return;
+        }
+
+        // Numbered before commit: if the commit itself then fails, this number is
+        // never delivered and every other node flushes once gap-timeout expires.
+        // That is rare and only costs a cold cache; numbering after commit would
+        // instead need a second connection and could lose the message entirely.
+        long seq = sequence.incrementAndGet();
+        String payload = encode(new InvalidationMessage(nodeId, seq, entries));
+        if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            Map<String, Set<String>> flush = new HashMap<>();
+            entries.keySet().forEach(cacheName -> flush.put(cacheName, Set.of(ALL_KEYS)));
+            payload = encode(new InvalidationMessage(nodeId, seq, flush));
+        }
+
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel, payload);
+    }
+
+    private String encode(InvalidationMessage message) {
+        return objectMapper.writeValueAsString(message);
+    }
+
+    private void receive(List<String> payloads) {
+        Map<String, Set<String>> merged = new HashMap<>();
+
+        for (String payload : payloads) {
+            InvalidationMessage message;
+            try {
+                message = objectMapper.readValue(payload, InvalidationMessage.class);
+            } catch (RuntimeException e) {
+                log.warn("Ignoring malformed cache invalidation: {}", payload);
+                continue;
+            }
+            if (nodeId.equals(message.node())) {
+                continue;
+            }
+
+            nodes.computeIfAbsent(message.node(), node -> new NodeState(gapTimeout))
+                    .received(message.seq(), System.currentTimeMillis());
+            message.entries().forEach((cacheName, keys) ->
+                    merged.computeIfAbsent(cacheName, name -> new HashSet<>()).addAll(keys));
+        }
+
+        evictLocally(merged);
+    }
+
+    private void checkGaps() {
+        long now = System.currentTimeMillis();
+        boolean missed = nodes.values().stream().anyMatch(state -> state.hasExpiredGap(now));
+
+        if (missed) {
+            log.warn("Missed cache invalidations detected, flushing all caches");
+            nodes.values().forEach(NodeState::clearGaps);
+            evictAllLocally();
+        }
+    }
+
+    private void evictLocally(Map<String, Set<String>> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        listeners.orderedStream().forEach(listener -> {
+            Set<String> keys = entries.get(listener.getCacheName());
+            if (keys == null) {
+                return;
+            }
+            if (keys.contains(ALL_KEYS)) {
+                listener.evictAll();
+            } else {
+                listener.evict(keys);
+            }
+        });
+    }
+
+    private void evictAllLocally() {
+        listeners.orderedStream().forEach(CacheInvalidationListener::evictAll);
+    }
+
+    record InvalidationMessage(String node, long seq, Map<String, Set<String>> entries) {
+    }
+
+    /** Tracks which sequence numbers from one sender have not arrived yet. */
+    static class NodeState {
+
+        static final int MAX_MISSING = 1000;
+
+        private final long gapTimeout;
+        private long highest;
+        private final Map<Long, Long> missing = new HashMap<>();
+
+        NodeState(long gapTimeout) {
+            this.gapTimeout = gapTimeout;
+        }
+
+        void received(long seq, long now) {
+            if (highest == 0) {
+                highest = seq;
+                return;
+            }
+            if (seq <= highest) {
+                // Transactions can commit in a different order than they were numbered.
+                missing.remove(seq);
+                return;
+            }
+
+            long deadline = now + gapTimeout;
+            for (long gap = highest + 1; gap < seq && missing.size() <= MAX_MISSING; gap++) {
+                missing.put(gap, deadline);
+            }
+            highest = seq;
+        }
+
+        boolean hasExpiredGap(long now) {
+            return missing.size() > MAX_MISSING
+                    || missing.values().stream().anyMatch(deadline -> deadline <= now);
+        }
+
+        void clearGaps() {
+            missing.clear();
+        }
+    }
+
+    /** Invalidations collected during one transaction. */
+    private class PendingInvalidations implements TransactionSynchronization {
+
+        private final Map<String, Set<String>> entries = new HashMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            send(entries);
+        }
+
+        @Override
+        public void afterCommit() {
+            evictLocally(entries);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidationBus.this);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.ratana.prodstack.cache;
+
+import java.util.Set;
+
+/**
+ * Implemented by in-process caches that must drop entries when another node
+ * (or this one) changes the underlying data. Register as a bean and
+ * {@link CacheInvalidationBus} will find it.
+ */
+public interface CacheInvalidationListener {
+
+    String getCacheName();
+
+    void evict(Set<String> keys);
+
+    void evictAll();
+}
@@ -0,0 +1,9 @@
+package com.ratana.prodstack.cache;
+
+public final class CacheNames {
+
+    public static final String POSTS = "posts";
+
+    private CacheNames() {
+    }
+}
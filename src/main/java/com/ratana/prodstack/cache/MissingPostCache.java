@@ -0,0 +1,127 @@
+package com.ratana.prodstack.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers post ids that were recently looked up and not found, so repeated
+ * misses (typically clients probing random ids) are answered without a query.
+ * Entries expire after {@code app.cache.missing-posts.ttl} ms and are evicted on
+ * every node when a post with that id is created, see {@link CacheInvalidationBus}.
+ * <p>
+ * Entries live in two generations. New entries go into the current one, which
+ * replaces the previous one every ttl or as soon as it holds half of
+ * {@code max-size} ids. Expired entries and overflow are therefore dropped a
+ * whole generation at a time, never by scanning on the request path.
+ */
+@Component
+public class MissingPostCache implements CacheInvalidationListener {
+
+    @Value("${app.cache.missing-posts.ttl}")
+    private long ttlMillis;
+
+    @Value("${app.cache.missing-posts.max-size}")
+    private int maxSize;
+
+    private final LongSupplier clock;
+
+    /** Bumped by every eviction, see {@link #markMissing(Long, long)}. */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /** Post id to expiry time in {@link #clock} units. */
+    private volatile Map<Long, Long> current = new ConcurrentHashMap<>();
+    private volatile Map<Long, Long> previous = new ConcurrentHashMap<>();
+    private volatile long rotateAt;
+
+    public MissingPostCache() {
+        this(System::nanoTime);
+    }
+
+    MissingPostCache(LongSupplier clock) {
+        this.clock = clock;
+        this.rotateAt = clock.getAsLong();
+    }
+
+    public boolean isMissing(Long id) {
+        Long expiry = current.get(id);
+        if (expiry == null) {
+            expiry = previous.get(id);
+        }
+        return expiry != null && expiry - clock.getAsLong() > 0;
+    }
+
+    /**
+     * Token to pass to {@link #markMissing(Long, long)}; take it before looking
+     * the post up.
+     */
+    public long generation() {
+        return invalidations.get();
+    }
+
+    /**
+     * Records that {@code id} was not found, unless anything was evicted since
+     * {@code generation} was taken: the post may have been created after our
+     * lookup, and caching the miss would hide it for a whole ttl.
+     */
+    public void markMissing(Long id, long generation) {
+        long now = clock.getAsLong();
+        Map<Long, Long> target = rotateIfDue(now);
+
+        Long expiry = now + ttlMillis * 1_000_000;
+        target.put(id, expiry);
+
+        // An eviction either ran before this check and is caught by it, or runs
+        // after the put and removes the entry itself.
+        if (invalidations.get() != generation) {
+            target.remove(id, expiry);
+        }
+    }
+
+    @Override
+    public String getCacheName() {
+        return CacheNames.POSTS;
+    }
+
+    @Override
+    public synchronized void evict(Set<String> keys) {
+        invalidations.incrementAndGet();
+        keys.forEach(key -> {
+            try {
+                Long id = Long.valueOf(key);
+                current.remove(id);
+                previous.remove(id);
+            } catch (NumberFormatException e) {
+                // Not a post id; nothing cached under it.
+            }
+        });
+    }
+
+    @Override
+    public synchronized void evictAll() {
+        invalidations.incrementAndGet();
+        current.clear();
+        previous.clear();
+    }
+
+    private Map<Long, Long> rotateIfDue(long now) {
+        Map<Long, Long> target = current;
+        if (now - rotateAt < 0 && target.size() < Math.max(1, maxSize / 2)) {
+            return target;
+        }
+
+        synchronized (this) {
+            if (current == target) {
+                previous = target;
+                current = new ConcurrentHashMap<>();
+                rotateAt = now + ttlMillis * 1_000_000;
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.ratana.prodstack.cluster;
+
+import java.util.List;
+
+/**
+ * Receives PostgreSQL notifications sent by any node on one channel. Register as
+ * a bean and {@link ClusterNotificationListener} LISTENs on its channel. All
+ * callbacks run on the listener thread.
+ */
+public interface ClusterNotificationHandler {
+
+    String getChannel();
+
+    /** Payloads received in one poll, in the order they were delivered. */
+    void onNotifications(List<String> payloads);
+
+    /**
+     * Called after every successful LISTEN, including reconnects. Anything sent
+     * while the connection was down has been lost.
+     */
+    default void onListening() {
+    }
+
+    /** Called after every poll, whether or not anything arrived. */
+    default void onPoll() {
+    }
+}
@@ -0,0 +1,175 @@
+package com.ratana.prodstack.cluster;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Holds this node's one dedicated PostgreSQL connection that LISTENs on the
+ * channels of all {@link ClusterNotificationHandler} beans and hands each of them
+ * what arrives on its channel.
+ * <p>
+ * The connection is not taken from the pool, since it stays open for the
+ * lifetime of the node. A half-open connection would otherwise look exactly
+ * like a quiet one, so it is probed with {@code SELECT 1} every
+ * {@code probe-interval} on a socket with a read timeout; any failure leads to a
+ * reconnect.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClusterNotificationListener {
+
+    private final ObjectProvider<ClusterNotificationHandler> handlers;
+
+    @Value("${app.cluster.listener.enabled}")
+    private boolean enabled;
+
+    @Value("${app.cluster.listener.poll-timeout}")
+    private int pollTimeout;
+
+    @Value("${app.cluster.listener.reconnect-delay}")
+    private long reconnectDelay;
+
+    @Value("${app.cluster.listener.probe-interval}")
+    private long probeInterval;
+
+    @Value("${app.cluster.listener.socket-timeout}")
+    private int socketTimeoutSeconds;
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    /** Started once the context is ready so handlers are never created from this thread. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        Map<String, ClusterNotificationHandler> byChannel = new HashMap<>();
+        handlers.orderedStream().forEach(handler -> {
+            if (!handler.getChannel().matches("[a-z_][a-z0-9_]*")) {
+                throw new IllegalStateException("Invalid notification channel: " + handler.getChannel());
+            }
+            byChannel.put(handler.getChannel(), handler);
+        });
+        if (byChannel.isEmpty()) {
+            return;
+        }
+
+        running = true;
+        listenerThread = new Thread(() -> listen(byChannel), "cluster-notification-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listen(Map<String, ClusterNotificationHandler> byChannel) {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, connectionProperties())) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    for (String channel : byChannel.keySet()) {
+                        statement.execute("LISTEN " + channel);
+                    }
+                }
+
+                byChannel.values().forEach(ClusterNotificationHandler::onListening);
+                log.info("Listening for cluster notifications on {}", byChannel.keySet());
+
+                long nextProbe = System.currentTimeMillis() + probeInterval;
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeout);
+                    if (notifications != null && notifications.length > 0) {
+                        dispatch(byChannel, notifications);
+                    }
+                    byChannel.values().forEach(ClusterNotificationHandler::onPoll);
+
+                    if (System.currentTimeMillis() >= nextProbe) {
+                        probe(connection);
+                        nextProbe = System.currentTimeMillis() + probeInterval;
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cluster notification listener disconnected, retrying in {} ms", reconnectDelay, e);
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(Map<String, ClusterNotificationHandler> byChannel, PGNotification[] notifications) {
+        Map<String, List<String>> payloads = new HashMap<>();
+        for (PGNotification notification : notifications) {
+            payloads.computeIfAbsent(notification.getName(), channel -> new ArrayList<>())
+                    .add(notification.getParameter());
+        }
+
+        payloads.forEach((channel, channelPayloads) -> {
+            ClusterNotificationHandler handler = byChannel.get(channel);
+            if (handler != null) {
+                handler.onNotifications(channelPayloads);
+            }
+        });
+    }
+
+    /**
+     * A half-open connection never reports notifications or errors on its own, so
+     * one round trip is forced now and then. With {@code socketTimeout} set, a
+     * dead peer makes this throw, which sends us through reconnect.
+     */
+    private void probe(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SELECT 1");
+        }
+    }
+
+    private Properties connectionProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("user", username);
+        properties.setProperty("password", password);
+        properties.setProperty("socketTimeout", Integer.toString(socketTimeoutSeconds));
+        properties.setProperty("tcpKeepAlive", "true");
+        return properties;
+    }
+}
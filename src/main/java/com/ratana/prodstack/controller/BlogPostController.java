@@ -3,32 +3,47 @@ package com.ratana.prodstack.controller;
 import com.ratana.prodstack.dto.BlogPostRequest;
 import com.ratana.prodstack.dto.BlogPostResponse;
 import com.ratana.prodstack.dto.MessageResponse;
+import com.ratana.prodstack.event.BlogPostEventBroadcaster;
+import com.ratana.prodstack.exception.BadRequestException;
+import com.ratana.prodstack.service.BlogPostExportService;
 import com.ratana.prodstack.service.BlogPostService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import java.io.OutputStream;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/posts")
 @RequiredArgsConstructor
 public class BlogPostController {
 
+    private static final Pattern ENTITY_TAG = Pattern.compile("(W/)?\"([^\"]*)\"");
+
     private final BlogPostService blogPostService;
+    private final BlogPostExportService blogPostExportService;
+    private final BlogPostEventBroadcaster blogPostEventBroadcaster;
 
     @PostMapping
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<BlogPostResponse> createBlogPost(@Valid @RequestBody BlogPostRequest request) {
-        try {
-            BlogPostResponse response = blogPostService.createBlogPost(request);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
-        } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
-        }
+        BlogPostResponse response = blogPostService.createBlogPost(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
     @GetMapping
@@ -37,37 +52,139 @@ public class BlogPostController {
         return ResponseEntity.ok(posts);
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<List<BlogPostResponse>> searchBlogPosts(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        if (q.isBlank()) {
+            throw new BadRequestException("Search query must not be blank");
+        }
+        if (page < 0 || size < 1 || size > 100) {
+            throw new BadRequestException("page must be 0 or more and size between 1 and 100");
+        }
+
+        List<BlogPostResponse> posts = blogPostService.searchBlogPosts(q, page, size);
+        return ResponseEntity.ok(posts);
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("isAuthenticated()")
+    public WebAsyncTask<Void> exportBlogPosts(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        blogPostExportService.acquireSlot();
+        // The slot is released once, by the worker when it exits or on completion if it never ran.
+        AtomicBoolean claimed = new AtomicBoolean();
+
+        WebAsyncTask<Void> task = new WebAsyncTask<>(blogPostExportService.getTimeout(), () -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                OutputStream out = response.getOutputStream();
+                if (gzip) {
+                    try (GZIPOutputStream gzipOut = new GZIPOutputStream(out, true)) {
+                        blogPostExportService.exportBlogPosts(gzipOut);
+                    }
+                } else {
+                    blogPostExportService.exportBlogPosts(out);
+                }
+                return null;
+            } finally {
+                blogPostExportService.releaseSlot();
+            }
+        });
+        task.onTimeout(() -> null);
+        task.onCompletion(() -> {
+            if (claimed.compareAndSet(false, true)) {
+                blogPostExportService.releaseSlot();
+            }
+        });
+        return task;
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBlogPostEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return blogPostEventBroadcaster.subscribe(lastEventId);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<BlogPostResponse> getBlogPostById(@PathVariable Long id) {
-        try {
-            BlogPostResponse response = blogPostService.getBlogPostById(id);
-            return ResponseEntity.ok(response);
-        } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        }
+        BlogPostResponse response = blogPostService.getBlogPostById(id);
+        return ResponseEntity.ok().eTag(toETag(response)).body(response);
     }
 
     @PutMapping("/{id}")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<BlogPostResponse> updateBlogPost(
             @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody BlogPostRequest request) {
-        try {
-            BlogPostResponse response = blogPostService.updateBlogPost(id, request);
-            return ResponseEntity.ok(response);
-        } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        }
+        BlogPostResponse response = blogPostService.updateBlogPost(id, request, parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(toETag(response)).body(response);
     }
 
     @DeleteMapping("/{id}")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<MessageResponse> deleteBlogPost(@PathVariable Long id) {
-        try {
-            blogPostService.deleteBlogPost(id);
-            return ResponseEntity.ok(new MessageResponse("Blog post deleted successfully"));
-        } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    public ResponseEntity<MessageResponse> deleteBlogPost(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        blogPostService.deleteBlogPost(id, parseIfMatch(ifMatch));
+        return ResponseEntity.ok(new MessageResponse("Blog post deleted successfully"));
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private String toETag(BlogPostResponse response) {
+        return "\"" + response.getVersion() + "\"";
+    }
+
+    // null means any version; weak and unknown tags never match, so the set may be empty.
+    private Set<Long> parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        Set<Long> versions = new HashSet<>();
+        Matcher matcher = ENTITY_TAG.matcher(ifMatch);
+        while (matcher.find()) {
+            if (matcher.group(1) == null && matcher.group(2).matches("\\d{1,18}")) {
+                versions.add(Long.parseLong(matcher.group(2)));
+            }
         }
+        return versions;
     }
-}
\ No newline at end of file
+}
@@ -16,4 +16,5 @@ public class BlogPostResponse {
     private String authorUsername;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private Long version;
 }
\ No newline at end of file
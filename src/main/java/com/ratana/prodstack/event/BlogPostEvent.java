@@ -0,0 +1,32 @@
+package com.ratana.prodstack.event;
+
+import com.ratana.prodstack.dto.BlogPostResponse;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BlogPostEvent {
+
+    public enum Type {
+        CREATED("post-created"),
+        UPDATED("post-updated"),
+        DELETED("post-deleted");
+
+        private final String eventName;
+
+        Type(String eventName) {
+            this.eventName = eventName;
+        }
+
+        public String getEventName() {
+            return eventName;
+        }
+    }
+
+    private Type type;
+    private Long postId;
+
+    /** Current state of the post; {@code null} for {@link Type#DELETED}. */
+    private BlogPostResponse post;
+}
@@ -0,0 +1,327 @@
+package com.ratana.prodstack.event;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fans {@link BlogPostEvent}s out to Server-Sent Events subscribers.
+ * <p>
+ * Every event is serialized once into a fixed-size ring shared by all
+ * subscribers; each subscriber only keeps a cursor into it. Subscribers hold no
+ * thread while idle. A subscriber that is behind is drained by one of
+ * {@code dispatch-threads} pool threads. A client that stops reading is dropped
+ * once a send has been stuck for {@code send-timeout} or it lags more than
+ * {@code max-lag} events behind; the thread blocked in its send is freed when
+ * the container's write timeout ({@code server.tomcat.connection-timeout})
+ * fails the write. The pool only stalls if more clients than it has threads
+ * hang within that window.
+ * <p>
+ * Event ids are {@code <epoch>-<sequence>}, where the epoch is random per
+ * process. A {@code Last-Event-ID} from another node, from before a restart or
+ * no longer in the ring cannot be resumed; the subscriber is sent a
+ * {@code resync} event and should reload what it shows.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlogPostEventBroadcaster {
+
+    static final String RESYNC_EVENT = "resync";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.events.buffer-size}")
+    private int bufferSize;
+
+    @Value("${app.events.dispatch-threads}")
+    private int dispatchThreads;
+
+    @Value("${app.events.max-lag}")
+    private int maxLag;
+
+    @Value("${app.events.send-timeout}")
+    private long sendTimeout;
+
+    @Value("${app.events.emitter-timeout}")
+    private long emitterTimeout;
+
+    @Value("${app.events.heartbeat-interval}")
+    private long heartbeatInterval;
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE), 36);
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private AtomicReferenceArray<Entry> ring;
+    private ExecutorService dispatcher;
+    private ScheduledExecutorService scheduler;
+
+    /** Sequence of the most recently published event, or -1 if none yet. */
+    private volatile long lastSequence = -1;
+
+    @PostConstruct
+    void start() {
+        ring = new AtomicReferenceArray<>(bufferSize);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(dispatchThreads, dispatchThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreads("sse-dispatch-"));
+        pool.allowCoreThreadTimeOut(true);
+        dispatcher = pool;
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("sse-scheduler-"));
+
+        long stallCheckInterval = Math.max(1, sendTimeout / 4);
+        scheduler.scheduleAtFixedRate(this::dropStalledSubscribers,
+                stallCheckInterval, stallCheckInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::sendHeartbeats,
+                heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.drop("shutting down"));
+        dispatcher.shutdown();
+    }
+
+    /**
+     * Registers a new subscriber. When {@code lastEventId} was issued by this
+     * process and is still in the ring, the subscriber is replayed everything
+     * after it; otherwise it gets a {@code resync} event and then live events.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(new SseEmitter(emitterTimeout), lastEventId);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, String lastEventId) {
+        long next = lastSequence + 1;
+        long resume = resumeFrom(lastEventId, next);
+        Subscriber subscriber = new Subscriber(emitter, resume < 0 ? next : resume);
+        subscriber.resyncDue = lastEventId != null && !lastEventId.isBlank() && resume < 0;
+
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> {
+            subscribers.remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+
+        if (subscriber.resyncDue || subscriber.cursor <= lastSequence) {
+            subscriber.schedule();
+        }
+        return emitter;
+    }
+
+    /** Events of writes handled by this node, once they are committed. */
+    @TransactionalEventListener
+    public void onBlogPostEvent(BlogPostEvent event) {
+        publish(event);
+    }
+
+    public void publish(BlogPostEvent event) {
+        append(event.getType().getEventName(), objectMapper.writeValueAsString(event));
+    }
+
+    /**
+     * Tells every subscriber that events may have been lost, e.g. because the
+     * cluster feed was disconnected for a while.
+     */
+    public void publishResync() {
+        append(RESYNC_EVENT, "{}");
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private synchronized void append(String name, String data) {
+        long sequence = lastSequence + 1;
+        ring.set(slot(sequence), new Entry(sequence, name, data));
+        lastSequence = sequence;
+
+        subscribers.forEach(subscriber -> {
+            if (subscriber.isSending() && sequence - subscriber.cursor > maxLag) {
+                subscriber.drop("lagging " + (sequence - subscriber.cursor) + " events behind");
+            } else {
+                subscriber.schedule();
+            }
+        });
+    }
+
+    /**
+     * Sequence to resume from, or -1 if {@code lastEventId} cannot be resumed
+     * on this node.
+     */
+    private long resumeFrom(String lastEventId, long next) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return next;
+        }
+
+        String id = lastEventId.trim();
+        int separator = id.lastIndexOf('-');
+        if (separator < 0 || !id.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+
+        try {
+            long resume = Long.parseLong(id.substring(separator + 1)) + 1;
+            long oldest = Math.max(0, next - bufferSize);
+            return resume >= oldest && resume <= next ? resume : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void sendHeartbeats() {
+        subscribers.forEach(subscriber -> {
+            subscriber.heartbeatDue = true;
+            subscriber.schedule();
+        });
+    }
+
+    private void dropStalledSubscribers() {
+        long now = System.nanoTime();
+        long limit = TimeUnit.MILLISECONDS.toNanos(sendTimeout);
+
+        subscribers.forEach(subscriber -> {
+            long started = subscriber.sendStartedAt;
+            if (started != 0 && now - started > limit) {
+                subscriber.drop("send stalled for more than " + sendTimeout + " ms");
+            }
+        });
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory(prefix);
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % bufferSize);
+    }
+
+    private record Entry(long sequence, String name, String data) {
+    }
+
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /** Sequence of the next event to send; only advanced by the draining thread. */
+        private volatile long cursor;
+        private volatile boolean heartbeatDue;
+        private volatile boolean resyncDue;
+
+        /** {@link System#nanoTime()} when the current send started, 0 when idle. */
+        private volatile long sendStartedAt;
+
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+
+        boolean isSending() {
+            return sendStartedAt != 0;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::drain);
+                } catch (RuntimeException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                do {
+                    if (resyncDue) {
+                        resyncDue = false;
+                        send(SseEmitter.event().name(RESYNC_EVENT).data("{}"));
+                    }
+                    while (cursor <= lastSequence) {
+                        Entry entry = ring.get(slot(cursor));
+                        if (entry == null || entry.sequence() != cursor) {
+                            drop("overtaken by the ring");
+                            return;
+                        }
+                        send(SseEmitter.event()
+                                .id(eventId(entry.sequence()))
+                                .name(entry.name())
+                                .data(entry.data()));
+                        cursor = cursor + 1;
+                    }
+                    if (heartbeatDue) {
+                        heartbeatDue = false;
+                        send(SseEmitter.event().comment("heartbeat"));
+                    }
+                    scheduled.set(false);
+                } while ((cursor <= lastSequence || heartbeatDue) && subscribers.contains(this)
+                        && scheduled.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException e) {
+                // Almost always the client going away; nothing worth reporting.
+                subscribers.remove(this);
+                try {
+                    emitter.complete();
+                } catch (RuntimeException ignored) {
+                    // Already completed.
+                }
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            sendStartedAt = System.nanoTime();
+            try {
+                emitter.send(event);
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+
+        /**
+         * Removes the subscriber and ends its response. A send that is blocked on
+         * the socket keeps its thread until the write fails, but nothing is ever
+         * scheduled for this subscriber again. Completing the emitter waits for
+         * that send, so it happens on a dispatcher thread rather than on the
+         * publishing or scheduler thread.
+         */
+        void drop(String reason) {
+            if (subscribers.remove(this)) {
+                log.debug("Dropping SSE subscriber: {}", reason);
+                try {
+                    dispatcher.execute(emitter::complete);
+                } catch (RuntimeException e) {
+                    // Dispatcher already shut down; the container ends the response.
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ratana.prodstack.event;
+
+import com.ratana.prodstack.cluster.ClusterNotificationHandler;
+import com.ratana.prodstack.service.BlogPostService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Carries {@link BlogPostEvent}s between nodes over PostgreSQL LISTEN/NOTIFY so
+ * SSE subscribers see writes handled by any node.
+ * <p>
+ * Only the event type and post id are sent, inside the writing transaction, so
+ * the notification is delivered only if it commits. Receivers load the current
+ * state of the post themselves. If the listening connection was down, events
+ * may have been lost and subscribers are sent a {@code resync} event.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlogPostEventRelay implements ClusterNotificationHandler {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final BlogPostService blogPostService;
+    private final BlogPostEventBroadcaster broadcaster;
+
+    @Value("${app.events.channel}")
+    private String channel;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /** Loads posts off the listener thread, one event at a time to keep their order. */
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(loaderThreads());
+
+    private boolean listenedBefore;
+
+    @PreDestroy
+    void stop() {
+        loader.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onBlogPostEvent(BlogPostEvent event) {
+        String payload = objectMapper.writeValueAsString(
+                new RelayMessage(nodeId, event.getType(), event.getPostId()));
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel, payload);
+    }
+
+    @Override
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void onListening() {
+        if (listenedBefore) {
+            broadcaster.publishResync();
+        }
+        listenedBefore = true;
+    }
+
+    @Override
+    public void onNotifications(List<String> payloads) {
+        for (String payload : payloads) {
+            RelayMessage message;
+            try {
+                message = objectMapper.readValue(payload, RelayMessage.class);
+            } catch (RuntimeException e) {
+                log.warn("Ignoring malformed post event: {}", payload);
+                continue;
+            }
+            if (!nodeId.equals(message.node())) {
+                loader.execute(() -> relay(message));
+            }
+        }
+    }
+
+    private void relay(RelayMessage message) {
+        if (message.type() == BlogPostEvent.Type.DELETED) {
+            broadcaster.publish(new BlogPostEvent(message.type(), message.postId(), null));
+            return;
+        }
+
+        try {
+            // Gone again by now means a delete follows; nothing to announce.
+            blogPostService.findBlogPost(message.postId()).ifPresent(post ->
+                    broadcaster.publish(new BlogPostEvent(message.type(), message.postId(), post)));
+        } catch (RuntimeException e) {
+            log.warn("Could not relay {} of post {}, asking subscribers to resync",
+                    message.type(), message.postId(), e);
+            broadcaster.publishResync();
+        }
+    }
+
+    private static ThreadFactory loaderThreads() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("post-event-relay-");
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    record RelayMessage(String node, BlogPostEvent.Type type, Long postId) {
+    }
+}
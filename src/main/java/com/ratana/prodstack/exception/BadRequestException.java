@@ -0,0 +1,15 @@
+package com.ratana.prodstack.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class BadRequestException extends DomainException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.BAD_REQUEST;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ratana.prodstack.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ConflictException extends DomainException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.CONFLICT;
+    }
+}
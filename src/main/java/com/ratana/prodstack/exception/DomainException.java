@@ -0,0 +1,18 @@
+package com.ratana.prodstack.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Base class for expected outcomes of a request, such as a missing post or a
+ * write by someone who does not own it. These are part of normal control flow,
+ * so no stack trace is captured; {@link GlobalExceptionHandler} turns them into
+ * {@link #getStatus()} with the message as the error.
+ */
+public abstract class DomainException extends RuntimeException {
+
+    protected DomainException(String message) {
+        super(message, null, false, false);
+    }
+
+    public abstract HttpStatus getStatus();
+}
@@ -0,0 +1,15 @@
+package com.ratana.prodstack.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ForbiddenException extends DomainException {
+
+    public ForbiddenException(String message) {
+        super(message);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.FORBIDDEN;
+    }
+}
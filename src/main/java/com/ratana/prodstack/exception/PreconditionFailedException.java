@@ -0,0 +1,15 @@
+package com.ratana.prodstack.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class PreconditionFailedException extends DomainException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.PRECONDITION_FAILED;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ratana.prodstack.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ResourceNotFoundException extends DomainException {
+
+    public ResourceNotFoundException(String message) {
+        super(message);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.NOT_FOUND;
+    }
+}
@@ -43,6 +43,10 @@ public class BlogPost {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @PostLoad
     private void onLoad() {
         if (author != null) {
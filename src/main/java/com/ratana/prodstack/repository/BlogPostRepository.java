@@ -1,13 +1,143 @@
 package com.ratana.prodstack.repository;
 
 import com.ratana.prodstack.model.BlogPost;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BlogPostRepository extends JpaRepository<BlogPost, Long> {
     List<BlogPost> findAllByOrderByCreatedAtDesc();
     List<BlogPost> findByAuthorIdOrderByCreatedAtDesc(Long authorId);
-}
\ No newline at end of file
+
+    @EntityGraph(attributePaths = "author")
+    Optional<BlogPost> findWithAuthorById(Long id);
+
+    @EntityGraph(attributePaths = "author")
+    List<BlogPost> findWithAuthorByIdIn(List<Long> ids);
+
+    /**
+     * Number of posts matching {@code query}, counted up to {@code limit}; the
+     * heap scan stops there however common the term is.
+     */
+    @Query(value = """
+            SELECT count(*) FROM (
+                SELECT 1
+                FROM blog_posts p
+                WHERE p.search_vector @@ websearch_to_tsquery('english', :query)
+                LIMIT :limit
+            ) m
+            """, nativeQuery = true)
+    long countMatches(@Param("query") String query, @Param("limit") int limit);
+
+    /**
+     * Ids of all posts matching {@code query}, best first. The text rank is
+     * divided by the post's age in 30-day units so that, among similar matches,
+     * newer posts come first. Meant for terms with few matches: it ranks every
+     * one of them, found through the GIN index on {@code search_vector}.
+     */
+    @Query(value = """
+            SELECT p.id
+            FROM blog_posts p
+            WHERE p.search_vector @@ websearch_to_tsquery('english', :query)
+            ORDER BY ts_rank_cd(p.search_vector, websearch_to_tsquery('english', :query))
+                         / (1 + EXTRACT(EPOCH FROM (now() - p.created_at)) / 2592000) DESC,
+                     p.id DESC
+            LIMIT :limit OFFSET :offset
+            """, nativeQuery = true)
+    List<Long> searchIds(@Param("query") String query,
+                         @Param("limit") int limit,
+                         @Param("offset") long offset);
+
+    /**
+     * Like {@link #searchIds}, but only the {@code maxCandidates} newest matches
+     * are ranked. Meant for common terms, whose matches are dense enough that
+     * walking the {@code created_at} index backwards finds them quickly.
+     */
+    @Query(value = """
+            SELECT c.id
+            FROM (
+                SELECT p.id, p.search_vector, p.created_at
+                FROM blog_posts p
+                WHERE p.search_vector @@ websearch_to_tsquery('english', :query)
+                ORDER BY p.created_at DESC
+                LIMIT :maxCandidates
+            ) c
+            ORDER BY ts_rank_cd(c.search_vector, websearch_to_tsquery('english', :query))
+                         / (1 + EXTRACT(EPOCH FROM (now() - c.created_at)) / 2592000) DESC,
+                     c.id DESC
+            LIMIT :limit OFFSET :offset
+            """, nativeQuery = true)
+    List<Long> searchRecentIds(@Param("query") String query,
+                               @Param("maxCandidates") int maxCandidates,
+                               @Param("limit") int limit,
+                               @Param("offset") long offset);
+
+    /**
+     * Updates the post only if it belongs to {@code authorId}.
+     *
+     * @return the number of rows updated, 0 or 1
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            UPDATE BlogPost p
+            SET p.title = :title, p.content = :content, p.updatedAt = :updatedAt, p.version = p.version + 1
+            WHERE p.id = :id AND p.author.id = :authorId
+            """)
+    int updateOwnedPost(@Param("id") Long id,
+                        @Param("authorId") Long authorId,
+                        @Param("title") String title,
+                        @Param("content") String content,
+                        @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Updates the post only if it belongs to {@code authorId} and is still at
+     * one of {@code versions}.
+     *
+     * @return the number of rows updated, 0 or 1
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            UPDATE BlogPost p
+            SET p.title = :title, p.content = :content, p.updatedAt = :updatedAt, p.version = p.version + 1
+            WHERE p.id = :id AND p.author.id = :authorId AND p.version IN :versions
+            """)
+    int updateOwnedPostAtVersion(@Param("id") Long id,
+                                 @Param("authorId") Long authorId,
+                                 @Param("versions") Collection<Long> versions,
+                                 @Param("title") String title,
+                                 @Param("content") String content,
+                                 @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Deletes the post only if it belongs to {@code authorId}.
+     *
+     * @return the number of rows deleted, 0 or 1
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM BlogPost p WHERE p.id = :id AND p.author.id = :authorId")
+    int deleteOwnedPost(@Param("id") Long id, @Param("authorId") Long authorId);
+
+    /**
+     * Deletes the post only if it belongs to {@code authorId} and is still at
+     * one of {@code versions}.
+     *
+     * @return the number of rows deleted, 0 or 1
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            DELETE FROM BlogPost p
+            WHERE p.id = :id AND p.author.id = :authorId AND p.version IN :versions
+            """)
+    int deleteOwnedPostAtVersion(@Param("id") Long id,
+                                 @Param("authorId") Long authorId,
+                                 @Param("versions") Collection<Long> versions);
+}
@@ -3,6 +3,8 @@ package com.ratana.prodstack.service;
 import com.ratana.prodstack.dto.AuthResponse;
 import com.ratana.prodstack.dto.LoginRequest;
 import com.ratana.prodstack.dto.RegisterRequest;
+import com.ratana.prodstack.exception.ConflictException;
+import com.ratana.prodstack.exception.UnauthorizedException;
 import com.ratana.prodstack.model.User;
 import com.ratana.prodstack.repository.UserRepository;
 import com.ratana.prodstack.security.JwtUtil;
@@ -24,11 +26,11 @@ public class AuthService {
 
     public AuthResponse register(RegisterRequest request) {
         if (userRepository.existsByEmail(request.getEmail())) {
-            throw new RuntimeException("Email already exists");
+            throw new ConflictException("Email already exists");
         }
 
         if (userRepository.existsByUsername(request.getUsername())) {
-            throw new RuntimeException("Username already exists");
+            throw new ConflictException("Username already exists");
         }
 
         User user = new User();
@@ -49,7 +51,7 @@ public class AuthService {
         );
 
         User user = userRepository.findByEmail(request.getEmail())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+                .orElseThrow(() -> new UnauthorizedException("User not found"));
 
         String token = jwtUtil.generateToken(user);
 
@@ -0,0 +1,158 @@
+package com.ratana.prodstack.service;
+
+import com.ratana.prodstack.dto.BlogPostResponse;
+import com.ratana.prodstack.exception.TooManyRequestsException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.SequenceWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.concurrent.Semaphore;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlogPostExportService {
+
+    private static final String EXPORT_SQL = """
+            SELECT p.id, p.title, p.content, u.username, p.created_at, p.updated_at, p.version
+            FROM blog_posts p
+            JOIN users u ON u.id = p.author_id
+            ORDER BY p.id
+            """;
+
+    /** Last line of an export that the database cut short. */
+    static final byte[] ERROR_RECORD =
+            "{\"error\":\"Export incomplete\"}\n".getBytes(StandardCharsets.UTF_8);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.export.fetch-size}")
+    private int fetchSize;
+
+    @Value("${app.export.flush-interval}")
+    private int flushInterval;
+
+    @Value("${app.export.max-concurrent}")
+    private int maxConcurrent;
+
+    @Value("${app.export.timeout}")
+    private long timeout;
+
+    /**
+     * Each running export pins a pooled connection and an open transaction for as
+     * long as the client keeps reading, so only a few may run at once.
+     */
+    private Semaphore slots;
+
+    @PostConstruct
+    void init() {
+        slots = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Reserves one of the {@code app.export.max-concurrent} export slots. Every
+     * successful call must be paired with {@link #releaseSlot()}.
+     */
+    public void acquireSlot() {
+        if (!slots.tryAcquire()) {
+            throw new TooManyRequestsException("Too many exports in progress, try again later");
+        }
+    }
+
+    public void releaseSlot() {
+        slots.release();
+    }
+
+    /** Upper bound in milliseconds on how long one export response may stay open. */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Writes every blog post to {@code out} as newline-delimited JSON.
+     * <p>
+     * Rows are pulled from a server-side cursor ({@code fetchSize} at a time) and
+     * serialized one by one, so memory use does not depend on the table size. The
+     * transaction is required: PostgreSQL only honours the fetch size when
+     * auto-commit is off. If the client goes away the write fails, the row loop
+     * aborts and the statement is closed, which ends the query.
+     * <p>
+     * The status line is long gone when the database fails part-way, so the
+     * export then ends with {@link #ERROR_RECORD} as its last line instead.
+     */
+    @Transactional(readOnly = true)
+    public void exportBlogPosts(OutputStream out) throws IOException {
+        SequenceWriter writer = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .writeValues(out);
+        NdjsonRowWriter rowWriter = new NdjsonRowWriter(writer);
+
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(
+                        EXPORT_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                return ps;
+            }, rowWriter);
+        } catch (DataAccessException e) {
+            log.warn("Export failed after {} rows", rowWriter.rows, e);
+            writer.flush();
+            if (rowWriter.rows > 0) {
+                out.write('\n');
+            }
+            out.write(ERROR_RECORD);
+            out.flush();
+            return;
+        }
+
+        writer.flush();
+        if (rowWriter.rows > 0) {
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private class NdjsonRowWriter implements RowCallbackHandler {
+
+        private final SequenceWriter writer;
+        private long rows;
+
+        NdjsonRowWriter(SequenceWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            BlogPostResponse post = new BlogPostResponse(
+                    rs.getLong("id"),
+                    rs.getString("title"),
+                    rs.getString("content"),
+                    rs.getString("username"),
+                    rs.getObject("created_at", LocalDateTime.class),
+                    rs.getObject("updated_at", LocalDateTime.class),
+                    rs.getLong("version")
+            );
+
+            writer.write(post);
+            if (++rows % flushInterval == 0) {
+                writer.flush();
+            }
+        }
+    }
+}
@@ -1,18 +1,36 @@
 package com.ratana.prodstack.service;
 
+import com.ratana.prodstack.cache.CacheInvalidationBus;
+import com.ratana.prodstack.cache.CacheNames;
+import com.ratana.prodstack.cache.MissingPostCache;
 import com.ratana.prodstack.dto.BlogPostRequest;
 import com.ratana.prodstack.dto.BlogPostResponse;
+import com.ratana.prodstack.event.BlogPostEvent;
+import com.ratana.prodstack.exception.BadRequestException;
+import com.ratana.prodstack.exception.DomainException;
+import com.ratana.prodstack.exception.ForbiddenException;
+import com.ratana.prodstack.exception.PreconditionFailedException;
+import com.ratana.prodstack.exception.ResourceNotFoundException;
+import com.ratana.prodstack.exception.UnauthorizedException;
 import com.ratana.prodstack.model.BlogPost;
 import com.ratana.prodstack.model.User;
 import com.ratana.prodstack.repository.BlogPostRepository;
 import com.ratana.prodstack.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,6 +39,12 @@ public class BlogPostService {
 
     private final BlogPostRepository blogPostRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final MissingPostCache missingPostCache;
+
+    @Value("${app.search.max-candidates}")
+    private int maxSearchCandidates;
 
     @Transactional
     public BlogPostResponse createBlogPost(BlogPostRequest request) {
@@ -32,8 +56,13 @@ public class BlogPostService {
         blogPost.setAuthor(currentUser);
 
         BlogPost savedPost = blogPostRepository.save(blogPost);
+        BlogPostResponse response = mapToResponse(savedPost);
+
+        // The id may have been probed before it existed.
+        cacheInvalidationBus.invalidate(CacheNames.POSTS, savedPost.getId());
 
-        return mapToResponse(savedPost);
+        eventPublisher.publishEvent(new BlogPostEvent(BlogPostEvent.Type.CREATED, response.getId(), response));
+        return response;
     }
 
     @Transactional(readOnly = true)
@@ -45,44 +74,128 @@ public class BlogPostService {
     }
 
     @Transactional(readOnly = true)
+    public List<BlogPostResponse> searchBlogPosts(String query, int page, int size) {
+        long offset = (long) page * size;
+        if (offset >= maxSearchCandidates) {
+            throw new BadRequestException("Search results are limited to the first "
+                    + maxSearchCandidates + " matches");
+        }
+
+        // Rare terms are ranked over all their matches; common ones over the newest.
+        boolean common = blogPostRepository.countMatches(query, maxSearchCandidates + 1) > maxSearchCandidates;
+        List<Long> ids = common
+                ? blogPostRepository.searchRecentIds(query, maxSearchCandidates, size, offset)
+                : blogPostRepository.searchIds(query, size, offset);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, BlogPost> postsById = blogPostRepository.findWithAuthorByIdIn(ids)
+                .stream()
+                .collect(Collectors.toMap(BlogPost::getId, Function.identity()));
+
+        return ids.stream()
+                .map(postsById::get)
+                .filter(Objects::nonNull)
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+    }
+
+    // Not transactional, so a cached miss is answered without a connection.
     public BlogPostResponse getBlogPostById(Long id) {
-        BlogPost blogPost = blogPostRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Blog post not found with id: " + id));
+        if (missingPostCache.isMissing(id)) {
+            throw postNotFound(id);
+        }
+
+        long generation = missingPostCache.generation();
+        BlogPost blogPost = blogPostRepository.findWithAuthorById(id).orElse(null);
+        if (blogPost == null) {
+            missingPostCache.markMissing(id, generation);
+            throw postNotFound(id);
+        }
 
         return mapToResponse(blogPost);
     }
 
-    @Transactional
-    public BlogPostResponse updateBlogPost(Long id, BlogPostRequest request) {
-        BlogPost blogPost = blogPostRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Blog post not found with id: " + id));
-
-        User currentUser = getCurrentUser();
+    @Transactional(readOnly = true)
+    // Bypasses MissingPostCache; used for events relayed from other nodes.
+    public Optional<BlogPostResponse> findBlogPost(Long id) {
+        return blogPostRepository.findWithAuthorById(id).map(this::mapToResponse);
+    }
 
-        if (!blogPost.getAuthor().getId().equals(currentUser.getId())) {
-            throw new RuntimeException("You are not authorized to update this blog post");
+    @Transactional
+    public BlogPostResponse updateBlogPost(Long id, BlogPostRequest request, Set<Long> expectedVersions) {
+        Long currentUserId = getCurrentUserId();
+        LocalDateTime now = LocalDateTime.now();
+
+        int updated;
+        if (expectedVersions == null) {
+            updated = blogPostRepository.updateOwnedPost(id, currentUserId,
+                    request.getTitle(), request.getContent(), now);
+        } else if (expectedVersions.isEmpty()) {
+            // No tag can match; rejectWrite still reports 404 or 403 first.
+            updated = 0;
+        } else {
+            updated = blogPostRepository.updateOwnedPostAtVersion(id, currentUserId, expectedVersions,
+                    request.getTitle(), request.getContent(), now);
+        }
+        if (updated == 0) {
+            throw rejectWrite(id, currentUserId, "update");
         }
 
-        blogPost.setTitle(request.getTitle());
-        blogPost.setContent(request.getContent());
+        cacheInvalidationBus.invalidate(CacheNames.POSTS, id);
 
-        BlogPost updatedPost = blogPostRepository.save(blogPost);
+        BlogPost updatedPost = blogPostRepository.findWithAuthorById(id)
+                .orElseThrow(() -> postNotFound(id));
+        BlogPostResponse response = mapToResponse(updatedPost);
 
-        return mapToResponse(updatedPost);
+        eventPublisher.publishEvent(new BlogPostEvent(BlogPostEvent.Type.UPDATED, response.getId(), response));
+        return response;
     }
 
     @Transactional
-    public void deleteBlogPost(Long id) {
-        BlogPost blogPost = blogPostRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Blog post not found with id: " + id));
+    public void deleteBlogPost(Long id, Set<Long> expectedVersions) {
+        Long currentUserId = getCurrentUserId();
+
+        int deleted;
+        if (expectedVersions == null) {
+            deleted = blogPostRepository.deleteOwnedPost(id, currentUserId);
+        } else if (expectedVersions.isEmpty()) {
+            deleted = 0;
+        } else {
+            deleted = blogPostRepository.deleteOwnedPostAtVersion(id, currentUserId, expectedVersions);
+        }
+        if (deleted == 0) {
+            throw rejectWrite(id, currentUserId, "delete");
+        }
+        cacheInvalidationBus.invalidate(CacheNames.POSTS, id);
 
-        User currentUser = getCurrentUser();
+        eventPublisher.publishEvent(new BlogPostEvent(BlogPostEvent.Type.DELETED, id, null));
+    }
+
+    private DomainException rejectWrite(Long id, Long currentUserId, String action) {
+        BlogPost blogPost = blogPostRepository.findById(id).orElse(null);
 
-        if (!blogPost.getAuthor().getId().equals(currentUser.getId())) {
-            throw new RuntimeException("You are not authorized to delete this blog post");
+        if (blogPost == null) {
+            return postNotFound(id);
+        }
+        if (!blogPost.getAuthor().getId().equals(currentUserId)) {
+            return new ForbiddenException("You are not authorized to " + action + " this blog post");
         }
+        return new PreconditionFailedException("Blog post with id " + id + " was modified by another request");
+    }
 
-        blogPostRepository.delete(blogPost);
+    private ResourceNotFoundException postNotFound(Long id) {
+        return new ResourceNotFoundException("Blog post not found with id: " + id);
+    }
+
+    private Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        return getCurrentUser().getId();
     }
 
     private User getCurrentUser() {
@@ -90,7 +203,7 @@ public class BlogPostService {
         String username = authentication.getName();
 
         return userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Current user not found"));
+                .orElseThrow(() -> new UnauthorizedException("Current user not found"));
     }
 
     private BlogPostResponse mapToResponse(BlogPost blogPost) {
@@ -100,7 +213,8 @@ public class BlogPostService {
                 blogPost.getContent(),
                 blogPost.getAuthor().getUsername(),
                 blogPost.getCreatedAt(),
-                blogPost.getUpdatedAt()
+                blogPost.getUpdatedAt(),
+                blogPost.getVersion()
         );
     }
 }
\ No newline at end of file
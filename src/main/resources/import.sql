@@ -0,0 +1,6 @@
+-- Executed by Hibernate after it creates the schema (spring.jpa.hibernate.ddl-auto=create).
+-- Full-text search: PostgreSQL keeps the generated column up to date on every insert and update.
+ALTER TABLE blog_posts ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (setweight(to_tsvector('english', coalesce(title, '')), 'A') || setweight(to_tsvector('english', coalesce(content, '')), 'B')) STORED;
+CREATE INDEX idx_blog_posts_search_vector ON blog_posts USING GIN (search_vector);
+-- Recency: the search candidate cap and the post listing both read posts newest first.
+CREATE INDEX idx_blog_posts_created_at ON blog_posts (created_at DESC);
@@ -0,0 +1,168 @@
+package com.ratana.prodstack.cache;
+
+import com.ratana.prodstack.cache.CacheInvalidationBus.InvalidationMessage;
+import com.ratana.prodstack.cache.CacheInvalidationBus.NodeState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheInvalidationBusTest {
+
+    private static final String CHANNEL = "test_channel";
+    private static final long GAP_TIMEOUT = 2000;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final CacheInvalidationListener listener = mock(CacheInvalidationListener.class);
+
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<CacheInvalidationListener> listeners = mock(ObjectProvider.class);
+
+    private CacheInvalidationBus bus;
+
+    @BeforeEach
+    void setUp() {
+        bus = new CacheInvalidationBus(jdbcTemplate, objectMapper, listeners);
+        ReflectionTestUtils.setField(bus, "enabled", true);
+        ReflectionTestUtils.setField(bus, "channel", CHANNEL);
+
+        when(listener.getCacheName()).thenReturn(CacheNames.POSTS);
+        when(listeners.orderedStream()).thenAnswer(invocation -> Stream.of(listener));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void invalidationOutsideTransactionIsSentAndAppliedImmediately() {
+        bus.invalidate(CacheNames.POSTS, 42L);
+
+        InvalidationMessage message = sentMessage();
+        assertThat(message.seq()).isEqualTo(1);
+        assertThat(message.entries()).containsEntry(CacheNames.POSTS, Set.of("42"));
+        verify(listener).evict(Set.of("42"));
+    }
+
+    @Test
+    void invalidationsInOneTransactionAreCoalescedAndAppliedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        bus.invalidate(CacheNames.POSTS, 1L);
+        bus.invalidate(CacheNames.POSTS, 2L);
+        bus.invalidate(CacheNames.POSTS, 1L);
+
+        commit();
+
+        assertThat(sentMessage().entries()).containsEntry(CacheNames.POSTS, Set.of("1", "2"));
+        verify(listener).evict(Set.of("1", "2"));
+    }
+
+    @Test
+    void oversizedPayloadFallsBackToFlushingTheCache() {
+        TransactionSynchronizationManager.initSynchronization();
+        for (long id = 1_000_000; id < 1_002_000; id++) {
+            bus.invalidate(CacheNames.POSTS, id);
+        }
+
+        commit();
+
+        InvalidationMessage message = sentMessage();
+        assertThat(message.entries()).containsEntry(CacheNames.POSTS, Set.of("*"));
+        assertThat(objectMapper.writeValueAsString(message)).hasSizeLessThan(8000);
+        verify(listener, never()).evictAll();
+        verify(listener).evict(argThat(keys -> keys.size() == 2000));
+    }
+
+    @Test
+    void firstMessageFromNodeSetsBaseline() {
+        NodeState state = new NodeState(GAP_TIMEOUT);
+
+        state.received(17, 0);
+
+        assertThat(state.hasExpiredGap(Long.MAX_VALUE)).isFalse();
+    }
+
+    @Test
+    void consecutiveMessagesLeaveNoGap() {
+        NodeState state = new NodeState(GAP_TIMEOUT);
+
+        state.received(1, 0);
+        state.received(2, 10);
+        state.received(3, 20);
+
+        assertThat(state.hasExpiredGap(Long.MAX_VALUE)).isFalse();
+    }
+
+    @Test
+    void gapFilledByLateMessageIsForgotten() {
+        NodeState state = new NodeState(GAP_TIMEOUT);
+
+        state.received(1, 0);
+        state.received(3, 10);
+        state.received(2, 20);
+
+        assertThat(state.hasExpiredGap(10 + GAP_TIMEOUT)).isFalse();
+    }
+
+    @Test
+    void unfilledGapExpiresAfterTimeout() {
+        NodeState state = new NodeState(GAP_TIMEOUT);
+
+        state.received(1, 0);
+        state.received(3, 10);
+
+        assertThat(state.hasExpiredGap(10 + GAP_TIMEOUT - 1)).isFalse();
+        assertThat(state.hasExpiredGap(10 + GAP_TIMEOUT)).isTrue();
+
+        state.clearGaps();
+        assertThat(state.hasExpiredGap(Long.MAX_VALUE)).isFalse();
+    }
+
+    @Test
+    void hugeGapIsReportedImmediately() {
+        NodeState state = new NodeState(GAP_TIMEOUT);
+
+        state.received(1, 0);
+        state.received(NodeState.MAX_MISSING + 10, 0);
+
+        assertThat(state.hasExpiredGap(0)).isTrue();
+    }
+
+    private void commit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.beforeCommit(false);
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    private InvalidationMessage sentMessage() {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).queryForList(eq("SELECT pg_notify(?, ?)"), eq(CHANNEL), payload.capture());
+        return objectMapper.readValue((String) payload.getValue(), InvalidationMessage.class);
+    }
+}
@@ -0,0 +1,115 @@
+package com.ratana.prodstack.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MissingPostCacheTest {
+
+    private static final long TTL_MILLIS = 1000;
+    private static final long MILLIS = 1_000_000;
+
+    private final AtomicLong now = new AtomicLong(1_000 * MILLIS);
+    private MissingPostCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new MissingPostCache(now::get);
+        ReflectionTestUtils.setField(cache, "ttlMillis", TTL_MILLIS);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+    }
+
+    @Test
+    void missIsRememberedUntilTtlExpires() {
+        cache.markMissing(1L, cache.generation());
+        assertThat(cache.isMissing(1L)).isTrue();
+
+        now.addAndGet((TTL_MILLIS - 1) * MILLIS);
+        assertThat(cache.isMissing(1L)).isTrue();
+
+        now.addAndGet(MILLIS);
+        assertThat(cache.isMissing(1L)).isFalse();
+    }
+
+    @Test
+    void missSurvivesOneRotationWithinTtl() {
+        cache.markMissing(0L, cache.generation());
+        now.addAndGet(TTL_MILLIS / 2 * MILLIS);
+        cache.markMissing(1L, cache.generation());
+
+        // Rotates: the entry moves to the previous generation but has not expired.
+        now.addAndGet(TTL_MILLIS * 3 / 5 * MILLIS);
+        cache.markMissing(2L, cache.generation());
+
+        assertThat(generation("previous")).containsKey(1L);
+        assertThat(cache.isMissing(1L)).isTrue();
+        assertThat(cache.isMissing(2L)).isTrue();
+    }
+
+    @Test
+    void expiredGenerationsAreDroppedOnRotation() {
+        cache.markMissing(1L, cache.generation());
+        now.addAndGet(TTL_MILLIS * MILLIS);
+        cache.markMissing(2L, cache.generation());
+        now.addAndGet(TTL_MILLIS * MILLIS);
+        cache.markMissing(3L, cache.generation());
+
+        assertThat(generation("current")).containsOnlyKeys(3L);
+        assertThat(generation("previous")).containsOnlyKeys(2L);
+    }
+
+    @Test
+    void missIsNotCachedWhenEvictedDuringLookup() {
+        long generation = cache.generation();
+
+        // A post with this id is created between our query and markMissing.
+        cache.evict(Set.of("1"));
+        cache.markMissing(1L, generation);
+
+        assertThat(cache.isMissing(1L)).isFalse();
+    }
+
+    @Test
+    void missIsNotCachedWhenAllEvictedDuringLookup() {
+        long generation = cache.generation();
+
+        cache.evictAll();
+        cache.markMissing(1L, generation);
+
+        assertThat(cache.isMissing(1L)).isFalse();
+    }
+
+    @Test
+    void evictRemovesFromBothGenerations() {
+        cache.markMissing(1L, cache.generation());
+        now.addAndGet(TTL_MILLIS / 2 * MILLIS);
+        ReflectionTestUtils.setField(cache, "rotateAt", now.get());
+        cache.markMissing(2L, cache.generation());
+
+        cache.evict(Set.of("1", "2", "not-a-number"));
+
+        assertThat(cache.isMissing(1L)).isFalse();
+        assertThat(cache.isMissing(2L)).isFalse();
+    }
+
+    @Test
+    void sizeStaysBoundedWithoutExpiry() {
+        for (long id = 0; id < 1000; id++) {
+            cache.markMissing(id, cache.generation());
+        }
+
+        assertThat(generation("current").size() + generation("previous").size()).isLessThanOrEqualTo(100);
+        assertThat(cache.isMissing(999L)).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Long> generation(String name) {
+        return (Map<Long, Long>) ReflectionTestUtils.getField(cache, name);
+    }
+}
@@ -0,0 +1,134 @@
+package com.ratana.prodstack.config;
+
+import com.ratana.prodstack.controller.BlogPostController;
+import com.ratana.prodstack.event.BlogPostEventBroadcaster;
+import com.ratana.prodstack.exception.GlobalExceptionHandler;
+import com.ratana.prodstack.model.User;
+import com.ratana.prodstack.security.JwtAuthenticationFilter;
+import com.ratana.prodstack.security.JwtUtil;
+import com.ratana.prodstack.service.BlogPostExportService;
+import com.ratana.prodstack.service.BlogPostService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringJUnitWebConfig(SecurityConfigTest.Config.class)
+class SecurityConfigTest {
+
+    private static final String TOKEN = "valid-token";
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private BlogPostExportService blogPostExportService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        reset(jwtUtil, userDetailsService, blogPostExportService);
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("johndoe");
+        when(jwtUtil.extractUsername(TOKEN)).thenReturn("johndoe");
+        when(userDetailsService.loadUserByUsername("johndoe")).thenReturn(user);
+        when(jwtUtil.validateToken(eq(TOKEN), any())).thenReturn(true);
+        when(blogPostExportService.getTimeout()).thenReturn(60000L);
+
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    }
+
+    @Test
+    void authenticatedExportSurvivesAsyncDispatch() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(blogPostExportService).exportBlogPosts(any());
+
+        MvcResult result = mockMvc.perform(get("/api/posts/export")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":1}\n"));
+    }
+
+    @Test
+    void anonymousExportIsRejectedBeforeStarting() throws Exception {
+        mockMvc.perform(get("/api/posts/export"))
+                .andExpect(status().is4xxClientError());
+
+        verify(blogPostExportService, never()).acquireSlot();
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @Import({SecurityConfig.class, JwtAuthenticationFilter.class, BlogPostController.class,
+            GlobalExceptionHandler.class})
+    static class Config {
+
+        @Bean
+        JwtUtil jwtUtil() {
+            return mock(JwtUtil.class);
+        }
+
+        @Bean
+        UserDetailsService userDetailsService() {
+            return mock(UserDetailsService.class);
+        }
+
+        @Bean
+        BlogPostService blogPostService() {
+            return mock(BlogPostService.class);
+        }
+
+        @Bean
+        BlogPostExportService blogPostExportService() {
+            return mock(BlogPostExportService.class);
+        }
+
+        @Bean
+        BlogPostEventBroadcaster blogPostEventBroadcaster() {
+            return mock(BlogPostEventBroadcaster.class);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.ratana.prodstack.controller;
+
+import com.ratana.prodstack.dto.BlogPostRequest;
+import com.ratana.prodstack.dto.BlogPostResponse;
+import com.ratana.prodstack.event.BlogPostEventBroadcaster;
+import com.ratana.prodstack.exception.ForbiddenException;
+import com.ratana.prodstack.exception.GlobalExceptionHandler;
+import com.ratana.prodstack.exception.PreconditionFailedException;
+import com.ratana.prodstack.exception.ResourceNotFoundException;
+import com.ratana.prodstack.exception.TooManyRequestsException;
+import com.ratana.prodstack.service.BlogPostExportService;
+import com.ratana.prodstack.service.BlogPostService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class BlogPostControllerTest {
+
+    private static final String BODY = "{\"title\":\"Title\",\"content\":\"Content\"}";
+
+    private final BlogPostService blogPostService = mock(BlogPostService.class);
+    private final BlogPostExportService blogPostExportService = mock(BlogPostExportService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        when(blogPostExportService.getTimeout()).thenReturn(60000L);
+        BlogPostController controller = new BlogPostController(blogPostService,
+                blogPostExportService, mock(BlogPostEventBroadcaster.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void updateWithMatchingIfMatchReturnsNewETag() throws Exception {
+        when(blogPostService.updateBlogPost(eq(1L), any(BlogPostRequest.class), eq(Set.of(3L))))
+                .thenReturn(post(4L));
+
+        mockMvc.perform(put("/api/posts/1")
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.version").value(4));
+    }
+
+    @Test
+    void updateWithStaleIfMatchIsRejected() throws Exception {
+        when(blogPostService.updateBlogPost(eq(1L), any(BlogPostRequest.class), eq(Set.of(2L))))
+                .thenThrow(new PreconditionFailedException("Blog post with id 1 was modified by another request"));
+
+        mockMvc.perform(put("/api/posts/1")
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error").exists());
+    }
+
+    @Test
+    void updateWithoutIfMatchAcceptsAnyVersion() throws Exception {
+        when(blogPostService.updateBlogPost(eq(1L), any(BlogPostRequest.class), isNull()))
+                .thenReturn(post(4L));
+
+        mockMvc.perform(put("/api/posts/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY))
+                .andExpect(status().isOk());
+
+        verify(blogPostService).updateBlogPost(eq(1L), any(BlogPostRequest.class), isNull());
+    }
+
+    @Test
+    void wildcardIfMatchAcceptsAnyVersion() throws Exception {
+        mockMvc.perform(delete("/api/posts/1").header(HttpHeaders.IF_MATCH, "*"))
+                .andExpect(status().isOk());
+
+        verify(blogPostService).deleteBlogPost(eq(1L), isNull());
+    }
+
+    @Test
+    void weakIfMatchIsPassedOnAsMatchingNothing() throws Exception {
+        when(blogPostService.updateBlogPost(eq(1L), any(BlogPostRequest.class), eq(Set.of())))
+                .thenThrow(new PreconditionFailedException("Blog post with id 1 was modified by another request"));
+
+        mockMvc.perform(put("/api/posts/1")
+                        .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error").exists());
+    }
+
+    @Test
+    void unknownIfMatchOnMissingPostIsNotFound() throws Exception {
+        doThrow(new ResourceNotFoundException("Blog post not found with id: 9"))
+                .when(blogPostService).deleteBlogPost(9L, Set.of());
+
+        mockMvc.perform(delete("/api/posts/9").header(HttpHeaders.IF_MATCH, "\"abc\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void weakIfMatchByNonOwnerIsForbidden() throws Exception {
+        doThrow(new ForbiddenException("You are not authorized to delete this blog post"))
+                .when(blogPostService).deleteBlogPost(1L, Set.of());
+
+        mockMvc.perform(delete("/api/posts/1").header(HttpHeaders.IF_MATCH, "W/\"0\""))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void multipleIfMatchTagsKeepOnlyStrongOnes() throws Exception {
+        mockMvc.perform(delete("/api/posts/1").header(HttpHeaders.IF_MATCH, "\"3\", W/\"4\", \"5\""))
+                .andExpect(status().isOk());
+
+        verify(blogPostService).deleteBlogPost(1L, Set.of(3L, 5L));
+    }
+
+    @Test
+    void updateByNonOwnerIsForbidden() throws Exception {
+        when(blogPostService.updateBlogPost(eq(1L), any(BlogPostRequest.class), eq(Set.of(3L))))
+                .thenThrow(new ForbiddenException("You are not authorized to update this blog post"));
+
+        mockMvc.perform(put("/api/posts/1")
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.error").value("You are not authorized to update this blog post"));
+    }
+
+    @Test
+    void deleteOfMissingPostIsNotFound() throws Exception {
+        doThrow(new ResourceNotFoundException("Blog post not found with id: 9"))
+                .when(blogPostService).deleteBlogPost(9L, Set.of(1L));
+
+        mockMvc.perform(delete("/api/posts/9").header(HttpHeaders.IF_MATCH, "\"1\""))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Blog post not found with id: 9"));
+    }
+
+    @Test
+    void searchWithInvalidParametersReturnsErrorBody() throws Exception {
+        mockMvc.perform(get("/api/posts/search").param("q", " "))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Search query must not be blank"));
+
+        mockMvc.perform(get("/api/posts/search").param("q", "spring").param("size", "101"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").exists());
+
+        verify(blogPostService, never()).searchBlogPosts(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void exportIsGzippedOnlyWhenAccepted() throws Exception {
+        assertExportEncoding("gzip, deflate", "gzip");
+        assertExportEncoding("GZIP", "gzip");
+        assertExportEncoding("gzip;q=0, identity", null);
+        assertExportEncoding(null, null);
+    }
+
+    @Test
+    void exportBeyondMaxConcurrentIsRejected() throws Exception {
+        doThrow(new TooManyRequestsException("Too many exports in progress, try again later"))
+                .when(blogPostExportService).acquireSlot();
+
+        mockMvc.perform(get("/api/posts/export"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.error").exists());
+
+        verify(blogPostExportService, never()).exportBlogPosts(any());
+    }
+
+    @Test
+    void exportReleasesSlotAfterSuccess() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(blogPostExportService).exportBlogPosts(any());
+
+        MvcResult result = mockMvc.perform(get("/api/posts/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":1}\n"));
+
+        verify(blogPostExportService, times(1)).releaseSlot();
+    }
+
+    @Test
+    void exportReleasesSlotAfterError() throws Exception {
+        doThrow(new IOException("Broken pipe")).when(blogPostExportService).exportBlogPosts(any());
+
+        MvcResult result = mockMvc.perform(get("/api/posts/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        verify(blogPostExportService, times(1)).releaseSlot();
+    }
+
+    @Test
+    void exportKeepsSlotUntilWorkerExitsAfterTimeout() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            // Like a JDBC read, this does not give up when interrupted.
+            awaitUninterruptibly(finish);
+            return null;
+        }).when(blogPostExportService).exportBlogPosts(any());
+
+        MvcResult result = mockMvc.perform(get("/api/posts/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onComplete(new AsyncEvent(asyncContext));
+        }
+        verify(blogPostExportService, never()).releaseSlot();
+
+        finish.countDown();
+        verify(blogPostExportService, timeout(5000).times(1)).releaseSlot();
+    }
+
+    private void assertExportEncoding(String acceptEncoding, String expected) throws Exception {
+        MockHttpServletRequestBuilder export = get("/api/posts/export");
+        if (acceptEncoding != null) {
+            export.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+
+        MvcResult result = mockMvc.perform(export)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(expected == null
+                        ? header().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                        : header().string(HttpHeaders.CONTENT_ENCODING, expected));
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static BlogPostResponse post(Long version) {
+        LocalDateTime now = LocalDateTime.now();
+        return new BlogPostResponse(1L, "Title", "Content", "johndoe", now, now, version);
+    }
+}
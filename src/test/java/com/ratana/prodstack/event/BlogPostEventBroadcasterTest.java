@@ -0,0 +1,187 @@
+package com.ratana.prodstack.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlogPostEventBroadcasterTest {
+
+    private static final Pattern ID = Pattern.compile("id:\\s?(\\S+)");
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BlogPostEventBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new BlogPostEventBroadcaster(JsonMapper.builder().build());
+        ReflectionTestUtils.setField(broadcaster, "bufferSize", 1024);
+        ReflectionTestUtils.setField(broadcaster, "dispatchThreads", 4);
+        ReflectionTestUtils.setField(broadcaster, "maxLag", 512);
+        ReflectionTestUtils.setField(broadcaster, "sendTimeout", 200L);
+        ReflectionTestUtils.setField(broadcaster, "emitterTimeout", 60000L);
+        ReflectionTestUtils.setField(broadcaster, "heartbeatInterval", 60000L);
+        broadcaster.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        broadcaster.stop();
+    }
+
+    @Test
+    void stalledSubscriberIsDroppedWithoutDelayingOthers() throws InterruptedException {
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        broadcaster.subscribe(new StuckEmitter(release), null);
+        broadcaster.subscribe(first, null);
+        broadcaster.subscribe(second, null);
+
+        for (long id = 1; id <= 100; id++) {
+            broadcaster.publish(deleted(id));
+        }
+
+        awaitTrue(() -> first.frames.size() == 100 && second.frames.size() == 100);
+        awaitTrue(() -> broadcaster.getSubscriberCount() == 2);
+        assertThat(first.frames).allMatch(frame -> frame.contains("post-deleted"));
+    }
+
+    @Test
+    void subscriberFarBehindIsDroppedOnPublish() throws InterruptedException {
+        ReflectionTestUtils.setField(broadcaster, "maxLag", 10);
+        ReflectionTestUtils.setField(broadcaster, "sendTimeout", 60000L);
+        RecordingEmitter healthy = new RecordingEmitter();
+        StuckEmitter stuck = new StuckEmitter(release);
+        broadcaster.subscribe(stuck, null);
+        broadcaster.subscribe(healthy, null);
+
+        broadcaster.publish(deleted(1L));
+        assertThat(stuck.sending.await(5, TimeUnit.SECONDS)).isTrue();
+        for (long id = 2; id <= 50; id++) {
+            broadcaster.publish(deleted(id));
+        }
+
+        assertThat(broadcaster.getSubscriberCount()).isEqualTo(1);
+        awaitTrue(() -> healthy.frames.size() == 50);
+    }
+
+    @Test
+    void resumesAfterLastEventIdFromThisNode() throws InterruptedException {
+        RecordingEmitter live = new RecordingEmitter();
+        broadcaster.subscribe(live, null);
+        for (long id = 1; id <= 5; id++) {
+            broadcaster.publish(deleted(id));
+        }
+        awaitTrue(() -> live.frames.size() == 5);
+
+        RecordingEmitter resumed = new RecordingEmitter();
+        broadcaster.subscribe(resumed, eventId(live.frames.get(1)));
+
+        awaitTrue(() -> resumed.frames.size() == 3);
+        assertThat(resumed.frames.stream().map(BlogPostEventBroadcasterTest::eventId).collect(Collectors.toList()))
+                .isEqualTo(live.frames.subList(2, 5).stream()
+                        .map(BlogPostEventBroadcasterTest::eventId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void foreignLastEventIdGetsResync() throws InterruptedException {
+        broadcaster.publish(deleted(1L));
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe(emitter, "otherepoch-0");
+        broadcaster.publish(deleted(2L));
+
+        awaitTrue(() -> emitter.frames.size() == 2);
+        assertThat(emitter.frames.get(0)).contains(BlogPostEventBroadcaster.RESYNC_EVENT);
+        assertThat(emitter.frames.get(1)).contains("post-deleted");
+    }
+
+    @Test
+    void staleLastEventIdFromThisNodeGetsResync() throws InterruptedException {
+        RecordingEmitter live = new RecordingEmitter();
+        broadcaster.subscribe(live, null);
+        broadcaster.publish(deleted(1L));
+        awaitTrue(() -> live.frames.size() == 1);
+
+        String id = eventId(live.frames.get(0));
+        String future = id.substring(0, id.lastIndexOf('-') + 1) + "999";
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe(emitter, future);
+
+        awaitTrue(() -> emitter.frames.size() == 1);
+        assertThat(emitter.frames.get(0)).contains(BlogPostEventBroadcaster.RESYNC_EVENT);
+    }
+
+    private static BlogPostEvent deleted(Long postId) {
+        return new BlogPostEvent(BlogPostEvent.Type.DELETED, postId, null);
+    }
+
+    private static String eventId(String frame) {
+        Matcher matcher = ID.matcher(frame);
+        assertThat(matcher.find()).isTrue();
+        return matcher.group(1);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static String render(SseEmitter.SseEventBuilder event) {
+        return event.build().stream()
+                .map(data -> String.valueOf(data.getData()))
+                .collect(Collectors.joining());
+    }
+
+    /** Records every frame it is asked to send. */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> frames = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder event) {
+            frames.add(render(event));
+        }
+    }
+
+    /** A client that stopped reading: every send blocks until the test ends. */
+    private static class StuckEmitter extends SseEmitter {
+
+        private final CountDownLatch release;
+        private final CountDownLatch sending = new CountDownLatch(1);
+
+        StuckEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder event) throws IOException {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+}
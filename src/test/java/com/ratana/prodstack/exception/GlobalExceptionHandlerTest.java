@@ -0,0 +1,79 @@
+package com.ratana.prodstack.exception;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDeniedException;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.MissingServletRequestParameterException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GlobalExceptionHandlerTest {
+
+    /** Named like the servlet containers' own client-abort exceptions. */
+    private static class ClientAbortException extends IOException {
+    }
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void deniedAnonymousCallerIsUnauthorized() {
+        SecurityContextHolder.getContext().setAuthentication(new AnonymousAuthenticationToken(
+                "key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+        ResponseEntity<Map<String, String>> response =
+                handler.handleAccessDenied(new AuthorizationDeniedException("Access Denied"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void deniedAuthenticatedCallerIsForbidden() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("johndoe", null, List.of()));
+
+        ResponseEntity<Map<String, String>> response =
+                handler.handleAccessDenied(new AuthorizationDeniedException("Access Denied"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
+    @Test
+    void unexpectedExceptionDoesNotLeakItsMessage() {
+        ResponseEntity<Map<String, String>> response = handler.handleGeneralException(
+                new DataIntegrityViolationException("duplicate key value violates unique constraint \"users_email_key\""));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(response.getBody()).containsEntry("error", "An unexpected error occurred");
+    }
+
+    @Test
+    void clientDisconnectWritesNothing() {
+        assertThat(handler.handleGeneralException(new IOException("Broken pipe"))).isNull();
+        assertThat(handler.handleGeneralException(new ClientAbortException())).isNull();
+    }
+
+    @Test
+    void frameworkClientErrorKeepsItsStatus() {
+        ResponseEntity<Map<String, String>> response = handler.handleGeneralException(
+                new MissingServletRequestParameterException("q", "String"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).containsOnlyKeys("error");
+    }
+}
@@ -0,0 +1,108 @@
+package com.ratana.prodstack.service;
+
+import com.ratana.prodstack.exception.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BlogPostExportServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private BlogPostExportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BlogPostExportService(jdbcTemplate, JsonMapper.builder().build());
+        ReflectionTestUtils.setField(service, "fetchSize", 500);
+        ReflectionTestUtils.setField(service, "flushInterval", 2);
+        ReflectionTestUtils.setField(service, "maxConcurrent", 1);
+        service.init();
+    }
+
+    @Test
+    void writesOneLinePerRowWithTrailingNewline() throws Exception {
+        returnRows(3, false);
+
+        String body = export();
+
+        assertThat(body).endsWith("\n");
+        assertThat(body.split("\n", -1)).hasSize(4);
+        assertThat(body.split("\n")).allMatch(line -> line.startsWith("{\"id\":"));
+    }
+
+    @Test
+    void emptyTableGivesEmptyBody() throws Exception {
+        returnRows(0, false);
+
+        assertThat(export()).isEmpty();
+    }
+
+    @Test
+    void databaseFailureEndsWithErrorRecord() throws Exception {
+        returnRows(2, true);
+
+        String[] lines = export().split("\n");
+
+        assertThat(lines).hasSize(3);
+        assertThat(lines[2]).isEqualTo("{\"error\":\"Export incomplete\"}");
+    }
+
+    @Test
+    void rejectsExportsBeyondMaxConcurrent() {
+        service.acquireSlot();
+
+        assertThatThrownBy(service::acquireSlot).isInstanceOf(TooManyRequestsException.class);
+
+        service.releaseSlot();
+        service.acquireSlot();
+    }
+
+    private String export() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportBlogPosts(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private void returnRows(int count, boolean failAfter) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long id = 1; id <= count; id++) {
+                handler.processRow(row(id));
+            }
+            if (failAfter) {
+                throw new DataAccessResourceFailureException("connection reset");
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    private static ResultSet row(long id) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getString("title")).thenReturn("Title " + id);
+        when(rs.getString("content")).thenReturn("Line one\nline two");
+        when(rs.getString("username")).thenReturn("johndoe");
+        when(rs.getObject(eq("created_at"), eq(LocalDateTime.class))).thenReturn(LocalDateTime.of(2024, 1, 15, 10, 30));
+        when(rs.getObject(eq("updated_at"), eq(LocalDateTime.class))).thenReturn(LocalDateTime.of(2024, 1, 15, 10, 30));
+        when(rs.getLong("version")).thenReturn(0L);
+        return rs;
+    }
+}
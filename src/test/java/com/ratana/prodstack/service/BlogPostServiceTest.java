@@ -0,0 +1,185 @@
+package com.ratana.prodstack.service;
+
+import com.ratana.prodstack.cache.CacheInvalidationBus;
+import com.ratana.prodstack.cache.MissingPostCache;
+import com.ratana.prodstack.dto.BlogPostRequest;
+import com.ratana.prodstack.exception.BadRequestException;
+import com.ratana.prodstack.exception.ForbiddenException;
+import com.ratana.prodstack.exception.PreconditionFailedException;
+import com.ratana.prodstack.exception.ResourceNotFoundException;
+import com.ratana.prodstack.model.BlogPost;
+import com.ratana.prodstack.model.User;
+import com.ratana.prodstack.repository.BlogPostRepository;
+import com.ratana.prodstack.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BlogPostServiceTest {
+
+    private static final Long USER_ID = 7L;
+    private static final Long OTHER_USER_ID = 8L;
+
+    private final BlogPostRepository blogPostRepository = mock(BlogPostRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final CacheInvalidationBus cacheInvalidationBus = mock(CacheInvalidationBus.class);
+
+    private BlogPostService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BlogPostService(blogPostRepository, mock(UserRepository.class), eventPublisher,
+                cacheInvalidationBus, mock(MissingPostCache.class));
+
+        User user = user(USER_ID);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void updateOfMissingPostIsNotFound() {
+        when(blogPostRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.updateBlogPost(1L, request(), Set.of(0L)))
+                .isInstanceOf(ResourceNotFoundException.class);
+        verify(cacheInvalidationBus, never()).invalidate(any(), any());
+    }
+
+    @Test
+    void updateOfSomeoneElsesPostIsForbidden() {
+        when(blogPostRepository.findById(1L)).thenReturn(Optional.of(post(OTHER_USER_ID, 0L)));
+
+        assertThatThrownBy(() -> service.updateBlogPost(1L, request(), Set.of(0L)))
+                .isInstanceOf(ForbiddenException.class);
+    }
+
+    @Test
+    void updateOfChangedPostFailsPrecondition() {
+        when(blogPostRepository.findById(1L)).thenReturn(Optional.of(post(USER_ID, 2L)));
+
+        assertThatThrownBy(() -> service.updateBlogPost(1L, request(), Set.of(1L)))
+                .isInstanceOf(PreconditionFailedException.class);
+        verify(blogPostRepository).updateOwnedPostAtVersion(eq(1L), eq(USER_ID), eq(Set.of(1L)),
+                any(), any(), any());
+    }
+
+    @Test
+    void unmatchableVersionsStillReportMissingPost() {
+        when(blogPostRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.deleteBlogPost(1L, Set.of()))
+                .isInstanceOf(ResourceNotFoundException.class);
+        verify(blogPostRepository, never()).deleteOwnedPostAtVersion(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void unmatchableVersionsStillReportNonOwner() {
+        when(blogPostRepository.findById(1L)).thenReturn(Optional.of(post(OTHER_USER_ID, 0L)));
+
+        assertThatThrownBy(() -> service.updateBlogPost(1L, request(), Set.of()))
+                .isInstanceOf(ForbiddenException.class);
+        verify(blogPostRepository, never()).updateOwnedPostAtVersion(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void unmatchableVersionsOnOwnPostFailPrecondition() {
+        when(blogPostRepository.findById(1L)).thenReturn(Optional.of(post(USER_ID, 0L)));
+
+        assertThatThrownBy(() -> service.updateBlogPost(1L, request(), Set.of()))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+
+    @Test
+    void deleteWithoutExpectedVersionIgnoresVersion() {
+        when(blogPostRepository.deleteOwnedPost(1L, USER_ID)).thenReturn(1);
+
+        service.deleteBlogPost(1L, null);
+
+        verify(blogPostRepository, never()).deleteOwnedPostAtVersion(anyLong(), anyLong(), any());
+        verify(eventPublisher).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void deleteOfSomeoneElsesPostIsForbidden() {
+        when(blogPostRepository.findById(1L)).thenReturn(Optional.of(post(OTHER_USER_ID, 0L)));
+
+        assertThatThrownBy(() -> service.deleteBlogPost(1L, Set.of(0L)))
+                .isInstanceOf(ForbiddenException.class);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void searchPastCandidateCapIsRejected() {
+        ReflectionTestUtils.setField(service, "maxSearchCandidates", 100);
+
+        assertThatThrownBy(() -> service.searchBlogPosts("spring", 5, 20))
+                .isInstanceOf(BadRequestException.class);
+        verify(blogPostRepository, never()).countMatches(any(), anyInt());
+    }
+
+    @Test
+    void rareTermIsRankedOverAllMatches() {
+        ReflectionTestUtils.setField(service, "maxSearchCandidates", 100);
+        when(blogPostRepository.countMatches("kubernetes", 101)).thenReturn(3L);
+
+        assertThat(service.searchBlogPosts("kubernetes", 0, 20)).isEmpty();
+        verify(blogPostRepository).searchIds("kubernetes", 20, 0L);
+        verify(blogPostRepository, never()).searchRecentIds(any(), anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void commonTermIsRankedOverNewestMatches() {
+        ReflectionTestUtils.setField(service, "maxSearchCandidates", 100);
+        when(blogPostRepository.countMatches("spring", 101)).thenReturn(101L);
+
+        assertThat(service.searchBlogPosts("spring", 4, 20)).isEmpty();
+        verify(blogPostRepository).searchRecentIds("spring", 100, 20, 80L);
+        verify(blogPostRepository, never()).searchIds(any(), anyInt(), anyLong());
+    }
+
+    private static BlogPostRequest request() {
+        BlogPostRequest request = new BlogPostRequest();
+        request.setTitle("Title");
+        request.setContent("Content");
+        return request;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        return user;
+    }
+
+    private static BlogPost post(Long authorId, Long version) {
+        BlogPost post = new BlogPost();
+        post.setId(1L);
+        post.setAuthor(user(authorId));
+        post.setVersion(version);
+        return post;
+    }
+}